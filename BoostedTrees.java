@@ -0,0 +1,679 @@
+import java.io.*;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Gradient-boosted decision trees (logistic loss for two classes, softmax for more)
+ * Every feature is pre-binned to a byte: numeric columns by quantiles of a sample,
+ *  categorical columns by value (the 255th distinct value onwards share the last bin).
+ *  Splits are found from per-bin gradient histograms, so growing a tree never looks
+ *  at the raw values again.
+ * Unlike DecisionTree, splits are chosen by Newton gain (sums of first and second
+ *  derivatives of the loss) rather than information gain, and are binary.
+ */
+public class BoostedTrees {
+    // a shallow regression tree, stored in flat arrays
+    static class Tree {
+        private int[] feature; // feature split on, -1 for a leaf
+        private long[] mask; // 4 words (256 bits) per node: the bins that go left
+        private int[] left;
+        private int[] right;
+        private double[] value; // leaf value (already multiplied by the learning rate)
+        private int size;
+
+        Tree(int capacity) {
+            feature = new int[capacity];
+            mask = new long[4 * capacity];
+            left = new int[capacity];
+            right = new int[capacity];
+            value = new double[capacity];
+        }
+
+        public int addNode() {
+            feature[size] = -1;
+            return size++;
+        }
+
+        // drop unused capacity once the tree is grown
+        public void trim() {
+            feature = Arrays.copyOf(feature, size);
+            mask = Arrays.copyOf(mask, 4 * size);
+            left = Arrays.copyOf(left, size);
+            right = Arrays.copyOf(right, size);
+            value = Arrays.copyOf(value, size);
+        }
+
+        public double predict(byte[] x) {
+            int n = 0;
+            while (feature[n] >= 0) {
+                int b = x[feature[n]] & 0xFF;
+                n = ((mask[4*n + (b >>> 6)] >>> b) & 1) != 0 ? left[n] : right[n];
+            }
+
+            return value[n];
+        }
+    }
+
+    private static Map<String, String> ops = new HashMap<>(); // map of options, descriptions
+
+    private static boolean header; // false by default
+    private static String delim = " ";
+    private static int where; // where is the class label, (indexed 0; can use negative values [e.g. -1 is the last]) - by default 0
+    private static boolean timeThis; // if true - display execution time on exit - false by default
+
+    private static int rounds = 100; // boosting rounds
+    private static double rate = 0.1; // learning rate (shrinkage)
+    private static int maxDepth = 4; // depth of each tree
+    private static final int MAX_DEPTH = 20; // trees are preallocated for 2^(depth+1) - 1 nodes
+    private static int minLeaf = 20; // minimum number of records in a leaf
+    private static double lambda = 1; // L2 regularization of leaf values
+
+    private static final int MAX_BINS = 256; // bins per feature; the last one is for missing/unseen values
+    private static final int SAMPLE = 10000; // values sampled per numeric column to place the bin boundaries
+    private static final int MAX_ARRAY = Integer.MAX_VALUE - 8; // largest array size the VM is sure to allow
+    private static final int PARALLEL = 1 << 15; // build histograms in parallel above this many (record, feature) pairs
+
+    private static File trainingSet;
+    private static File testingSet;
+
+    // binning
+    private static int numFeat;
+    private static boolean[] numeric; // true if every training value of the column is a number
+    private static double[][] cuts; // numeric columns: upper bounds of the bins
+    private static List<Map<String, Integer>> bins; // categorical columns: value -> bin
+    private static Map<String, Integer> classCodes = new HashMap<>();
+    private static List<String> classNames = new ArrayList<>();
+
+    // training data
+    private static int N;
+    private static byte[][] cols; // column-major bins, cols[feature][record]
+    private static int[] y;
+
+    // the model
+    private static int slots; // trees per round: 1 for two classes (log odds of the second), one per class otherwise
+    private static double[] base; // initial score of each slot
+    private static List<Tree> trees = new ArrayList<>(); // round-major: trees.get(round*slots + slot)
+
+    /**
+     * Trains the ensemble on trainingSet
+     * @throws IOException
+     */
+    public static void train() throws IOException {
+        setUpBins();
+        readTrainingSet();
+
+        int K = classNames.size();
+        slots = K == 2 ? 1 : K;
+        // score, g and h are indexed record * slots + slot, and histograms feature * MAX_BINS * 3 + ..., in int
+        if ((long) N * slots > MAX_ARRAY) die("Too many records * classes: " + N + " * " + slots + " scores do not fit in an array.");
+        if ((long) numFeat * MAX_BINS * 3 > MAX_ARRAY) die("Too many features: " + numFeat + " histograms do not fit in an array.");
+
+        // initial scores from the class priors
+        int[] counts = new int[K];
+        for (int yi : y) counts[yi]++;
+        base = new double[slots];
+        for (int t = 0; t < slots; t++) {
+            if (K == 2) base[t] = Math.log((counts[1] + 1.0) / (counts[0] + 1.0));
+            else base[t] = Math.log((counts[t] + 1.0) / (N + K));
+        }
+
+        // prediction cache: current score of every record for every slot, updated as leaves are made
+        double[] score = new double[N * slots];
+        for (int r = 0; r < N; r++) System.arraycopy(base, 0, score, r * slots, slots);
+
+        double[] g = new double[N * slots];
+        double[] h = new double[N * slots];
+        int[] idx = new int[N];
+
+        for (int round = 0; round < rounds; round++) {
+            gradients(score, g, h);
+
+            for (int t = 0; t < slots; t++) {
+                for (int r = 0; r < N; r++) idx[r] = r;
+                trees.add(growTree(idx, g, h, t, score));
+            }
+        }
+    }
+
+    /**
+     * First and second derivatives of the loss for every record and slot
+     * @param score
+     * @param g
+     * @param h
+     */
+    public static void gradients(double[] score, double[] g, double[] h) {
+        IntStream.range(0, N).parallel().forEach(r -> {
+            int o = r * slots;
+            if (slots == 1) { // logistic
+                double p = 1 / (1 + Math.exp(-score[o]));
+                g[o] = p - (y[r] == 1 ? 1 : 0);
+                h[o] = Math.max(p * (1 - p), 1e-16);
+                return;
+            }
+
+            // softmax
+            double max = Double.NEGATIVE_INFINITY;
+            for (int t = 0; t < slots; t++) max = Math.max(max, score[o + t]);
+            double sum = 0;
+            for (int t = 0; t < slots; t++) sum += Math.exp(score[o + t] - max);
+            for (int t = 0; t < slots; t++) {
+                double p = Math.exp(score[o + t] - max) / sum;
+                g[o + t] = p - (y[r] == t ? 1 : 0);
+                h[o + t] = Math.max(p * (1 - p), 1e-16);
+            }
+        });
+    }
+
+    /**
+     * Grows one tree on the gradients of slot t and adds its leaf values to score
+     * @param idx - record indices; partitioned in place as the tree grows
+     * @param g
+     * @param h
+     * @param t
+     * @param score
+     * @return
+     */
+    public static Tree growTree(int[] idx, double[] g, double[] h, int t, double[] score) {
+        // a full tree of maxDepth, but never more nodes than a tree over N records can have
+        Tree tree = new Tree((int) Math.min((1L << (maxDepth + 1)) - 1, 2L * N - 1));
+        double[] hist = new double[numFeat * MAX_BINS * 3];
+        buildHistogram(hist, idx, 0, N, g, h, t);
+        split(tree, tree.addNode(), idx, 0, N, 0, hist, g, h, t, score);
+        tree.trim();
+
+        return tree;
+    }
+
+    /**
+     * Splits node (records idx[lo..hi)) on the best (feature, bin set), or makes it a leaf
+     * @param tree
+     * @param node
+     * @param idx
+     * @param lo
+     * @param hi
+     * @param depth
+     * @param hist - (sum of g, sum of h, count) per feature and bin for this node; overwritten
+     * @param g
+     * @param h
+     * @param t
+     * @param score
+     */
+    public static void split(Tree tree, int node, int[] idx, int lo, int hi, int depth, double[] hist,
+                             double[] g, double[] h, int t, double[] score) {
+        // totals, from any feature's histogram
+        double G = 0, H = 0;
+        for (int b = 0; b < MAX_BINS; b++) {
+            G += hist[3*b];
+            H += hist[3*b + 1];
+        }
+
+        double[] gains = new double[numFeat];
+        long[][] masks = new long[numFeat][];
+        if (depth < maxDepth && hi - lo >= 2 * minLeaf) {
+            final double parentG = G, parentH = H;
+            parallel(hi - lo).forEach(f -> masks[f] = bestSplit(hist, f, parentG, parentH, gains));
+        }
+
+        int best = -1;
+        for (int f = 0; f < numFeat; f++) {
+            if (masks[f] != null && (best < 0 || gains[f] > gains[best])) best = f;
+        }
+
+        if (best < 0 || gains[best] <= 0) {
+            double v = -rate * G / (H + lambda);
+            tree.value[node] = v;
+            for (int i = lo; i < hi; i++) score[idx[i] * slots + t] += v;
+            return;
+        }
+
+        // partition idx[lo..hi) into left and right
+        long[] m = masks[best];
+        byte[] col = cols[best];
+        int mid = lo;
+        for (int i = lo; i < hi; i++) {
+            int b = col[idx[i]] & 0xFF;
+            if (((m[b >>> 6] >>> b) & 1) != 0) {
+                int tmp = idx[i];
+                idx[i] = idx[mid];
+                idx[mid++] = tmp;
+            }
+        }
+
+        tree.feature[node] = best;
+        System.arraycopy(m, 0, tree.mask, 4 * node, 4);
+        int l = tree.addNode();
+        int r = tree.addNode();
+        tree.left[node] = l;
+        tree.right[node] = r;
+
+        // histogram the smaller child; the larger one is the parent's minus the smaller's
+        boolean leftSmaller = mid - lo <= hi - mid;
+        double[] small = new double[hist.length];
+        if (leftSmaller) buildHistogram(small, idx, lo, mid, g, h, t);
+        else buildHistogram(small, idx, mid, hi, g, h, t);
+        for (int i = 0; i < hist.length; i++) hist[i] -= small[i];
+
+        split(tree, l, idx, lo, mid, depth + 1, leftSmaller ? small : hist, g, h, t, score);
+        split(tree, r, idx, mid, hi, depth + 1, leftSmaller ? hist : small, g, h, t, score);
+    }
+
+    /**
+     * Best split of feature f: numeric features split on bin order, categorical features
+     *  on bins ordered by g/h, so a single scan finds the best bin set either way
+     * @param hist
+     * @param f
+     * @param G - sum of g over the node
+     * @param H - sum of h over the node
+     * @param gains - gains[f] is set to the gain of the split
+     * @return the bins that go left, or null if no split leaves minLeaf records on both sides
+     */
+    public static long[] bestSplit(double[] hist, int f, double G, double H, double[] gains) {
+        int off = f * MAX_BINS * 3;
+        Integer[] order = new Integer[MAX_BINS];
+        int used = 0;
+        for (int b = 0; b < MAX_BINS; b++) {
+            if (hist[off + 3*b + 2] > 0) order[used++] = b;
+        }
+
+        if (!numeric[f]) {
+            Arrays.sort(order, 0, used, Comparator.comparingDouble(
+                    b -> hist[off + 3*b] / (hist[off + 3*b + 1] + lambda)));
+        }
+
+        double parentScore = G * G / (H + lambda);
+        double total = 0;
+        for (int i = 0; i < used; i++) total += hist[off + 3*order[i] + 2];
+
+        double GL = 0, HL = 0, nL = 0;
+        double bestGain = 0;
+        int bestEnd = -1; // order[0..bestEnd] go left
+        for (int i = 0; i < used - 1; i++) {
+            int b = order[i];
+            GL += hist[off + 3*b];
+            HL += hist[off + 3*b + 1];
+            nL += hist[off + 3*b + 2];
+            if (nL < minLeaf) continue;
+            if (total - nL < minLeaf) break;
+
+            double GR = G - GL, HR = H - HL;
+            double gain = GL * GL / (HL + lambda) + GR * GR / (HR + lambda) - parentScore;
+            if (gain > bestGain) {
+                bestGain = gain;
+                bestEnd = i;
+            }
+        }
+
+        if (bestEnd < 0) return null;
+
+        long[] mask = new long[4];
+        if (numeric[f]) {
+            // every bin up to the threshold, including empty ones
+            for (int b = 0; b <= order[bestEnd]; b++) mask[b >>> 6] |= 1L << b;
+        }
+        else {
+            for (int i = 0; i <= bestEnd; i++) mask[order[i] >>> 6] |= 1L << order[i];
+        }
+
+        gains[f] = bestGain;
+        return mask;
+    }
+
+    /**
+     * Sums g, h and the number of records per (feature, bin) over idx[lo..hi)
+     * @param hist
+     * @param idx
+     * @param lo
+     * @param hi
+     * @param g
+     * @param h
+     * @param t - slot of g and h to use
+     */
+    public static void buildHistogram(double[] hist, int[] idx, int lo, int hi, double[] g, double[] h, int t) {
+        parallel(hi - lo).forEach(f -> {
+            byte[] col = cols[f];
+            int off = f * MAX_BINS * 3;
+            for (int i = lo; i < hi; i++) {
+                int r = idx[i];
+                int b = off + 3 * (col[r] & 0xFF);
+                hist[b] += g[r * slots + t];
+                hist[b + 1] += h[r * slots + t];
+                hist[b + 2]++;
+            }
+        });
+    }
+
+    /**
+     * Stream over the features; parallel if the node is big enough to be worth it
+     * @param records - number of records in the node
+     * @return
+     */
+    public static IntStream parallel(int records) {
+        IntStream features = IntStream.range(0, numFeat);
+        return (long) records * numFeat >= PARALLEL ? features.parallel() : features;
+    }
+
+    /**
+     * Scans the training set once to decide how every column is binned:
+     *  quantiles of a sample for numeric columns, one bin per value for categorical columns
+     * @throws IOException
+     */
+    public static void setUpBins() throws IOException {
+        BufferedReader br = new BufferedReader(new FileReader(trainingSet));
+        Random random = new Random(42);
+        double[][] sample = null;
+        String line;
+
+        N = 0;
+        if (header) br.readLine(); // skip header row
+        while ((line = br.readLine()) != null) {
+            String[] row = line.split(delim);
+            if (sample == null) {
+                numFeat = row.length - 1;
+                numeric = new boolean[numFeat];
+                Arrays.fill(numeric, true);
+                sample = new double[numFeat][SAMPLE];
+                bins = new ArrayList<>();
+                for (int f = 0; f < numFeat; f++) bins.add(new HashMap<>());
+            }
+
+            if (row.length != numFeat + 1) {
+                System.err.printf("Record with %d columns instead of %d. Skipped.%n", row.length, numFeat + 1);
+                continue;
+            }
+
+            int classIdx = where < 0 ? where + row.length : where;
+            if (!classCodes.containsKey(row[classIdx])) {
+                classCodes.put(row[classIdx], classNames.size());
+                classNames.add(row[classIdx]);
+            }
+
+            // reservoir sample of each numeric column
+            int slot = N < SAMPLE ? N : random.nextInt(N + 1);
+            for (int c = 0, f = 0; c < row.length; c++) {
+                if (c == classIdx) continue;
+
+                Map<String, Integer> values = bins.get(f);
+                if (values.size() < MAX_BINS - 1 && !values.containsKey(row[c])) values.put(row[c], values.size());
+
+                if (numeric[f]) {
+                    try {
+                        double v = Double.parseDouble(row[c]);
+                        if (slot < SAMPLE) sample[f][slot] = v;
+                    } catch (NumberFormatException e) {
+                        numeric[f] = false;
+                    }
+                }
+
+                f++;
+            }
+
+            N++;
+        }
+
+        br.close();
+        if (N == 0) die("Nothing in training set");
+
+        cuts = new double[numFeat][];
+        for (int f = 0; f < numFeat; f++) {
+            if (!numeric[f]) continue;
+
+            double[] s = Arrays.copyOf(sample[f], Math.min(N, SAMPLE));
+            Arrays.sort(s);
+
+            // at most MAX_BINS - 2 distinct boundaries, so bins are 0..MAX_BINS-2 and the last is for missing values
+            double[] c = new double[MAX_BINS - 2];
+            int n = 0;
+            for (int q = 1; q <= MAX_BINS - 2; q++) {
+                double v = s[(int) ((long) q * (s.length - 1) / (MAX_BINS - 2))];
+                if (n == 0 || v > c[n - 1]) c[n++] = v;
+            }
+
+            cuts[f] = Arrays.copyOf(c, n);
+            bins.set(f, null); // numeric column; not needed
+        }
+    }
+
+    /**
+     * Reads the training set into column-major bins
+     * @throws IOException
+     */
+    public static void readTrainingSet() throws IOException {
+        BufferedReader br = new BufferedReader(new FileReader(trainingSet));
+        cols = new byte[numFeat][N];
+        y = new int[N];
+        byte[] x = new byte[numFeat];
+        String line;
+
+        int r = 0;
+        if (header) br.readLine(); // skip header row
+        while ((line = br.readLine()) != null && r < N) {
+            String[] row = line.split(delim);
+            if (row.length != numFeat + 1) continue; // reported by setUpBins()
+
+            y[r] = classCodes.get(binRecord(row, x));
+            for (int f = 0; f < numFeat; f++) cols[f][r] = x[f];
+            r++;
+        }
+
+        br.close();
+    }
+
+    /**
+     * Bins the features of a record into x
+     * @param row - the record, class label included
+     * @param x - bins of the features
+     * @return the class label
+     */
+    public static String binRecord(String[] row, byte[] x) {
+        int classIdx = where < 0 ? where + row.length : where;
+        for (int c = 0, f = 0; c < row.length && f < numFeat; c++) {
+            if (c == classIdx) continue;
+
+            int b = MAX_BINS - 1; // missing or unseen
+            if (numeric[f]) {
+                try {
+                    int i = Arrays.binarySearch(cuts[f], Double.parseDouble(row[c]));
+                    b = i >= 0 ? i : -i - 1; // first bin whose upper bound is >= the value
+                } catch (NumberFormatException ignored) {
+                }
+            }
+            else {
+                b = bins.get(f).getOrDefault(row[c], MAX_BINS - 1);
+            }
+
+            x[f++] = (byte) b;
+        }
+
+        return row[classIdx];
+    }
+
+    /**
+     * Predicts the class of a binned record
+     * @param x
+     * @param score - scratch space, one entry per slot
+     * @return index of the predicted class
+     */
+    public static int predict(byte[] x, double[] score) {
+        System.arraycopy(base, 0, score, 0, slots);
+        for (int i = 0; i < trees.size(); i++) {
+            score[i % slots] += trees.get(i).predict(x);
+        }
+
+        if (slots == 1) return score[0] > 0 ? 1 : 0;
+
+        int maxarg = 0;
+        for (int t = 1; t < slots; t++) {
+            if (score[t] > score[maxarg]) maxarg = t;
+        }
+
+        return maxarg;
+    }
+
+    /**
+     * Test the ensemble on testSet and write predictions and accuracy (100*right/total %) to outFile
+     * @param outFile the file to which the result is being written
+     * @throws IOException
+     */
+    public static void test(File outFile) throws IOException {
+        BufferedReader testing = new BufferedReader(new FileReader(testingSet));
+        BufferedWriter out = new BufferedWriter(new FileWriter(outFile));
+
+        int error = 0; // count incorrectly-predicted records
+        int N = 0; // number of test samples
+        byte[] x = new byte[numFeat];
+        double[] score = new double[slots];
+        String line;
+
+        if (header) testing.readLine(); // skip header row
+        while ((line = testing.readLine()) != null) {
+            N++;
+
+            String yi = binRecord(line.split(delim), x);
+            String prediction = classNames.get(predict(x, score));
+            if (!prediction.equals(yi)) error++;
+
+            out.write(prediction + "\n");
+        }
+
+        double errorRate = (double) error/N;
+        double accuracy = (1 - errorRate) * 100; // accuracy
+        out.write(String.format("Accuracy: %.3f%%%n", accuracy));
+
+        testing.close();
+        out.close();
+    }
+
+    /**
+     * Sets up the options
+     */
+    public static void setUpOps() {
+        // could use JCommander (http://jcommander.org/)
+        ops.put("-h", "header present in data");
+        ops.put("-s", "delimiter");
+        ops.put("-w", "index of class label in data - most likely 0 or -1 (first or last column)");
+        ops.put("-t", "display execution time");
+        ops.put("-n", "number of boosting rounds (default 100)");
+        ops.put("-l", "learning rate (default 0.1)");
+        ops.put("-x", "depth of each tree, at most 20 (default 4)");
+        ops.put("-m", "minimum number of records in a leaf (default 20)");
+        ops.put("-r", "L2 regularization of leaf values (default 1)");
+    }
+
+    /**
+     * Parses the options you supply
+     * @param args - the list of arguments passed in by the user
+     */
+    public static void parseOps(String[] args) {
+        for (int i = 0; i < args.length - 3; i++) {
+            if (args[i].charAt(0) == '-') {
+                String op = args[i];
+                if (!ops.containsKey(op)) {
+                    System.out.printf("%s it not a valid option. Skipped.%n", op);
+                    continue;
+                }
+
+                switch (op) {
+                    case "-h":  // header row in training and testing sets
+                        header = true;
+                        continue;
+                    case "-t": // time
+                        timeThis = true;
+                        continue;
+                    case "-s":  // delimiter
+                        i++;
+                        delim = args[i];
+                        break;
+                    case "-w":  // where the class label is (0,1,2...-1,-2,-3, etc.)
+                        i++;
+                        where = Integer.parseInt(args[i]);
+                        break;
+                    case "-n": // rounds
+                        i++;
+                        rounds = Integer.parseInt(args[i]);
+                        if (rounds < 1) die("Number of rounds must be at least 1.");
+                        break;
+                    case "-l": // learning rate
+                        i++;
+                        rate = Double.parseDouble(args[i]);
+                        if (!(rate > 0) || Double.isInfinite(rate)) die("Learning rate must be a positive number.");
+                        break;
+                    case "-x": // depth
+                        i++;
+                        maxDepth = Integer.parseInt(args[i]);
+                        if (maxDepth < 0 || maxDepth > MAX_DEPTH) die("Depth must be between 0 and " + MAX_DEPTH + ".");
+                        break;
+                    case "-m": // records per leaf
+                        i++;
+                        minLeaf = Integer.parseInt(args[i]);
+                        if (minLeaf < 1) die("Minimum records per leaf must be at least 1.");
+                        break;
+                    case "-r": // L2 regularization
+                        i++;
+                        lambda = Double.parseDouble(args[i]);
+                        if (!(lambda > 0) || Double.isInfinite(lambda)) die("L2 regularization must be a positive number.");
+                        break;
+                }
+            }
+        }
+    }
+
+    /**
+     * If a fatal error occurs, call this to kill the program
+     * @param msg - the message to display before dying
+     */
+    public static void die(String msg) {
+        System.err.println(msg);
+        System.exit(1);
+    }
+
+    public static void main(String[] args) throws IOException {
+        setUpOps();
+
+        if (args.length < 3) {
+            System.out.println("USAGE: java BoostedTrees [OPTION] TrainingSet TestingSet OutputFile");
+            if (ops.size() > 0) {
+                System.out.println("OPTIONS:");
+                for (Map.Entry<String, String> entry : ops.entrySet()){
+                    System.out.println("\t" + entry.getKey() + " - " + entry.getValue());
+                }
+            }
+
+            System.exit(1);
+        }
+
+        parseOps(args);
+
+        int first = args.length-3;
+        trainingSet = new File(args[first]);
+        testingSet = new File(args[first+1]);
+        File out = new File(args[first+2]);
+
+        // start timing here
+        long startTime = System.nanoTime();
+        train();
+        test(out);
+        long stopTime = System.nanoTime();
+
+        if (timeThis) {
+            long duration = (stopTime - startTime)/1000000; // in ms
+            double simpler = 0;
+            String unit = "hr";
+            if (duration > 1000*60*60) {
+                simpler = duration/(1000*60*60.); // hours
+            }
+
+            else if (duration > 1000*60) {
+                simpler = duration/(1000*60.); // minutes
+                unit = "min";
+            }
+
+            else if (duration > 1000) {
+                simpler = duration/(1000.); // seconds
+                unit = "s";
+            }
+
+            System.out.printf("Execution time: %d ms%n", duration);
+            if (simpler != 0) System.out.printf("\t%.5f %s%n", simpler, unit);
+        }
+    }
+}
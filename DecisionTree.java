@@ -15,6 +15,11 @@ public class DecisionTree {
         private int index; // which column the attribute is in
         private List<Node> children;
 
+        // class distribution summary of the training records that reached this node (used for pruning)
+        private String majority; // majority class label
+        private long count; // number of records
+        private long errors; // records misclassified if this node were a leaf
+
         Node(int index, String value) {
             this.index = index;
             this.value = value;
@@ -30,6 +35,22 @@ public class DecisionTree {
         }
     }
 
+    // Node used while growing the tree level by level out of core; converted to a Node when done
+    static class LevelNode {
+        private int attr = -1; // column (of the encoded copy) this node splits on; -1 if not split
+        private LevelNode[] children; // indexed by the value code of attr; null where no record went
+        private long[] classCounts; // class distribution of the records that reach this node
+        private boolean[] used; // columns already split on along the path; dropped once the node is final
+        private int depth;
+        private int slot = -1; // histogram slot during the current scan; -1 if not being histogrammed
+
+        LevelNode(long[] classCounts, boolean[] used, int depth) {
+            this.classCounts = classCounts;
+            this.used = used;
+            this.depth = depth;
+        }
+    }
+
     private static Map<String, String> ops = new HashMap<>(); // map of options, descriptions
 
     private static boolean header; // false by default
@@ -40,6 +61,28 @@ public class DecisionTree {
     private static File trainingSet;
     private static File testingSet;
 
+    // pre-pruning controls
+    private static double minGain = Double.MIN_VALUE; // minimum information gain required to split (any positive gain)
+    private static int minLeaf = 2; // at least two branches of a split must hold this many records (C4.5's -m); 1 turns the check off
+    private static int maxDepth = Integer.MAX_VALUE; // maximum depth of the tree
+
+    // post-pruning controls
+    private static boolean prune = true; // C4.5 prunes by default
+    private static double confidence = 0.25; // confidence factor (C4.5's -c); smaller values prune more
+    private static double coeff; // squared normal deviate for the confidence factor, see setCoeff()
+
+    // out-of-core training
+    private static boolean outOfCore; // grow the tree level by level from an encoded copy of the training set
+    private static int maxFrontier = 1024; // frontier nodes histogrammed per scan of the encoded copy
+    private static final int MAX_ARRAY = Integer.MAX_VALUE - 8; // largest array size the VM is sure to allow
+
+    // dictionaries of the encoded copy (column 0 is the class label)
+    private static List<Map<String, Integer>> codes;
+    private static List<List<String>> names;
+    private static int numCols;
+    private static long numRows;
+    private static long[] classTotals; // records per class code
+
     private static Node root;
     private static final int ROOT = -2; // used as the index of the root node
 
@@ -66,6 +109,350 @@ public class DecisionTree {
 
         root = new Node(ROOT, "");
         generateTree(D, root);
+
+        if (prune) {
+            setCoeff();
+            prune(root);
+        }
+    }
+
+    /**
+     * Train by building the decision tree breadth-first, without holding the
+     *  training set in memory. Each level of the tree takes one scan of an encoded
+     *  copy of the training set (or more, if the frontier is wider than maxFrontier):
+     *  every record is routed to its frontier node, which gathers class counts per
+     *  attribute value, and then every frontier node is split at once.
+     *  Memory use depends on frontier size * histogram size, not on the number of records.
+     * @throws IOException
+     */
+    public static void trainOutOfCore() throws IOException {
+        File encoded = encode();
+
+        try {
+            int numClasses = names.get(0).size();
+            boolean[] used = new boolean[numCols];
+            used[0] = true; // never split on the class label
+            LevelNode top = new LevelNode(classTotals, used, 0);
+
+            // offset of each column's histogram (values * classes) in a frontier node's histogram
+            int[] offset = new int[numCols + 1];
+            long size = 0;
+            for (int c = 1; c < numCols; c++) {
+                size += (long) names.get(c).size() * numClasses;
+                if (size > MAX_ARRAY) die("Too many attribute values * classes for -o: a node histogram would need more than " + MAX_ARRAY + " counts.");
+                offset[c + 1] = (int) size;
+            }
+
+            // as many frontier nodes per scan as fit in a quarter of the heap, at most maxFrontier
+            long perScan = Runtime.getRuntime().maxMemory() / 4 / (8 * Math.max(size, 1));
+            int batchSize = (int) Math.max(1, Math.min(maxFrontier, perScan));
+
+            List<LevelNode> frontier = new ArrayList<>();
+            if (expandable(top)) frontier.add(top);
+
+            while (!frontier.isEmpty()) {
+                List<LevelNode> next = new ArrayList<>();
+                for (int from = 0; from < frontier.size(); from += batchSize) {
+                    List<LevelNode> batch = frontier.subList(from, Math.min(from + batchSize, frontier.size()));
+                    long[][] hist = scanLevel(encoded, top, batch, offset);
+
+                    for (int i = 0; i < batch.size(); i++) {
+                        splitLevelNode(batch.get(i), hist[i], offset, next);
+                        hist[i] = null; // let it go as soon as possible
+                    }
+                }
+
+                frontier = next;
+            }
+
+            List<Integer> remaining = new ArrayList<>(numCols);
+            for (int c = 0; c < numCols; c++) remaining.add(c);
+
+            root = new Node(ROOT, "");
+            toNode(top, root, remaining);
+        } finally {
+            if (!encoded.delete()) System.err.println("Could not delete " + encoded);
+        }
+
+        if (prune) {
+            setCoeff();
+            prune(root);
+        }
+    }
+
+    /**
+     * Writes an encoded copy of the training set next to it: every value is replaced by
+     *  its code in the dictionary of its column, and the class label is moved to column 0
+     *  (as in train()). Sets up codes, names, numCols, numRows and classTotals.
+     *  Codes are written as varints: one byte per value while a column has fewer than 128
+     *  distinct values, two below 16384, so the copy is no larger than the training set
+     *  (each value there takes at least two bytes with its delimiter or line end).
+     * @return the encoded copy
+     * @throws IOException
+     */
+    public static File encode() throws IOException {
+        File encoded = File.createTempFile("dtree", ".bin", trainingSet.getAbsoluteFile().getParentFile());
+        encoded.deleteOnExit();
+
+        codes = new ArrayList<>();
+        names = new ArrayList<>();
+        numCols = 0;
+        numRows = 0;
+        classTotals = new long[16];
+
+        BufferedReader br = new BufferedReader(new FileReader(trainingSet));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(encoded), 1 << 16));
+        String line;
+
+        if (header) br.readLine(); // skip header row
+        while ((line = br.readLine()) != null) {
+            String[] row = line.split(delim);
+            if (numCols == 0) {
+                numCols = row.length;
+                for (int c = 0; c < numCols; c++) {
+                    codes.add(new HashMap<>());
+                    names.add(new ArrayList<>());
+                }
+            }
+
+            if (row.length != numCols) {
+                System.err.printf("Record with %d columns instead of %d. Skipped.%n", row.length, numCols);
+                continue;
+            }
+
+            int classIdx = where < 0 ? where + numCols : where;
+            String tmp = row[0];
+            row[0] = row[classIdx];
+            row[classIdx] = tmp;
+
+            for (int c = 0; c < numCols; c++) {
+                Integer code = codes.get(c).get(row[c]);
+                if (code == null) {
+                    code = names.get(c).size();
+                    codes.get(c).put(row[c], code);
+                    names.get(c).add(row[c]);
+                }
+
+                writeCode(out, code);
+            }
+
+            int y = codes.get(0).get(row[0]);
+            if (y >= classTotals.length) classTotals = Arrays.copyOf(classTotals, 2 * classTotals.length);
+            classTotals[y]++;
+            numRows++;
+        }
+
+        br.close();
+        out.close();
+        classTotals = Arrays.copyOf(classTotals, names.isEmpty() ? 0 : names.get(0).size());
+
+        return encoded;
+    }
+
+    /**
+     * Writes a code as a varint: 7 bits per byte, low bits first, high bit set on all but the last byte
+     * @param out
+     * @param code - non-negative
+     * @throws IOException
+     */
+    public static void writeCode(DataOutputStream out, int code) throws IOException {
+        while ((code & ~0x7F) != 0) {
+            out.writeByte((code & 0x7F) | 0x80);
+            code >>>= 7;
+        }
+        out.writeByte(code);
+    }
+
+    /**
+     * Reads a code written by writeCode
+     * @param in
+     * @return the code
+     * @throws IOException
+     */
+    public static int readCode(DataInputStream in) throws IOException {
+        int code = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readByte();
+            code |= (b & 0x7F) << shift;
+            if (b >= 0) return code;
+        }
+    }
+
+    /**
+     * Opens the encoded copy for a sequential scan
+     * @param encoded
+     * @return
+     * @throws IOException
+     */
+    public static DataInputStream openEncoded(File encoded) throws IOException {
+        return new DataInputStream(new BufferedInputStream(new FileInputStream(encoded), 1 << 16));
+    }
+
+    /**
+     * One scan of the encoded copy: routes every record down the tree and, if it ends up
+     *  at a node of batch, counts its class per attribute value in that node's histogram
+     * @param encoded
+     * @param top - root of the tree grown so far
+     * @param batch - the frontier nodes to histogram
+     * @param offset - offset of each column in a histogram
+     * @return histograms (column, value, class) of the nodes of batch
+     * @throws IOException
+     */
+    public static long[][] scanLevel(File encoded, LevelNode top, List<LevelNode> batch, int[] offset) throws IOException {
+        int numClasses = names.get(0).size();
+        long[][] hist = new long[batch.size()][];
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).slot = i;
+            hist[i] = new long[offset[numCols]];
+        }
+
+        int[] row = new int[numCols];
+        try (DataInputStream in = openEncoded(encoded)) {
+            for (long r = 0; r < numRows; r++) {
+                for (int c = 0; c < numCols; c++) row[c] = readCode(in);
+
+                LevelNode n = top;
+                while (n.attr >= 0) n = n.children[row[n.attr]];
+                if (n.slot < 0) continue; // at a leaf, or at a frontier node of another batch
+
+                long[] h = hist[n.slot];
+                boolean[] used = n.used;
+                for (int c = 1; c < numCols; c++) {
+                    if (!used[c]) h[offset[c] + row[c] * numClasses + row[0]]++;
+                }
+            }
+        }
+
+        for (LevelNode n : batch) n.slot = -1;
+
+        return hist;
+    }
+
+    /**
+     * Splits a frontier node on the attribute with the highest information gain
+     *  (same stopping rules as generateTree) and adds the children that still need
+     *  splitting to next
+     * @param n
+     * @param hist - histogram of n (column, value, class)
+     * @param offset - offset of each column in hist
+     * @param next - the next frontier
+     */
+    public static void splitLevelNode(LevelNode n, long[] hist, int[] offset, List<LevelNode> next) {
+        int numClasses = names.get(0).size();
+        long total = 0;
+        for (long k : n.classCounts) total += k;
+
+        double entropy = entropy(n.classCounts, 0, numClasses);
+        double maxIG = Integer.MIN_VALUE;
+        int featIdx = -1;
+
+        for (int c = 1; c < numCols; c++) {
+            if (n.used[c]) continue;
+
+            // sum{j=1..v} |Dj|/|D| * entropy(Dj), and the number of branches with minLeaf records
+            double info = 0;
+            int big = 0;
+            for (int v = 0; v < names.get(c).size(); v++) {
+                int from = offset[c] + v * numClasses;
+                long size = 0;
+                for (int k = 0; k < numClasses; k++) size += hist[from + k];
+                if (size == 0) continue;
+
+                if (size >= minLeaf) big++;
+                info += entropy(hist, from, numClasses) * size / total;
+            }
+
+            if (minLeaf > 1 && big < 2) continue;
+
+            double IG = entropy - info;
+            if (IG > maxIG) {
+                maxIG = IG;
+                featIdx = c;
+            }
+        }
+
+        boolean[] used = n.used;
+        n.used = null; // final from here on
+
+        if (featIdx < 0 || maxIG < minGain) return; // stays a leaf
+
+        n.attr = featIdx;
+        n.children = new LevelNode[names.get(featIdx).size()];
+        boolean[] childUsed = Arrays.copyOf(used, used.length);
+        childUsed[featIdx] = true;
+
+        for (int v = 0; v < n.children.length; v++) {
+            int from = offset[featIdx] + v * numClasses;
+            long[] counts = Arrays.copyOfRange(hist, from, from + numClasses);
+            long size = 0;
+            for (long k : counts) size += k;
+            if (size == 0) continue;
+
+            LevelNode child = new LevelNode(counts, childUsed, n.depth + 1);
+            n.children[v] = child;
+            if (expandable(child)) next.add(child);
+            else child.used = null;
+        }
+    }
+
+    /**
+     * Whether a level node can still be split (same base cases as generateTree)
+     * @param n
+     * @return
+     */
+    public static boolean expandable(LevelNode n) {
+        long total = 0;
+        int nonZero = 0;
+        for (long k : n.classCounts) {
+            total += k;
+            if (k > 0) nonZero++;
+        }
+
+        boolean attrsLeft = false;
+        for (boolean u : n.used) attrsLeft |= !u;
+
+        return nonZero > 1 && attrsLeft && n.depth < maxDepth && total >= 2 * minLeaf;
+    }
+
+    /**
+     * Converts the level-wise tree to Nodes, indexed the way generateTree indexes them
+     *  (position of the attribute in the record once the attributes above it are removed)
+     * @param n
+     * @param node
+     * @param remaining - the columns of the encoded copy left at this depth, in record order
+     */
+    public static void toNode(LevelNode n, Node node, List<Integer> remaining) {
+        // same rule as majority(): highest count, ties go to the smallest class label
+        List<String> classNames = names.get(0);
+        int numClasses = n.classCounts.length;
+        int majorityClass = 0;
+        long total = 0;
+        for (int k = 0; k < numClasses; k++) {
+            total += n.classCounts[k];
+            if (n.classCounts[k] > n.classCounts[majorityClass] || (n.classCounts[k] == n.classCounts[majorityClass]
+                    && classNames.get(k).compareTo(classNames.get(majorityClass)) < 0)) majorityClass = k;
+        }
+
+        node.majority = classNames.get(majorityClass);
+        node.count = total;
+        node.errors = total - n.classCounts[majorityClass];
+
+        if (n.attr < 0) {
+            makeLeaf(node);
+            return;
+        }
+
+        node.index = remaining.indexOf(n.attr);
+        List<Integer> childRemaining = new ArrayList<>(remaining);
+        childRemaining.remove(node.index);
+
+        for (int v = 0; v < n.children.length; v++) {
+            if (n.children[v] == null) continue;
+
+            Node child = new Node(-2, names.get(n.attr).get(v));
+            node.addChild(child);
+            toNode(n.children[v], child, childRemaining);
+        }
     }
 
     /**
@@ -74,33 +461,43 @@ public class DecisionTree {
      * @param parent
      */
     public static void generateTree(List<ArrayList<String>> D, Node parent) {
+        generateTree(D, parent, 0);
+    }
+
+    /**
+     * generates the decision tree (recursive), stopping early according to
+     *  minGain, minLeaf and maxDepth
+     * @param D
+     * @param parent
+     * @param depth - depth of parent in the tree (root is 0)
+     */
+    public static void generateTree(List<ArrayList<String>> D, Node parent, int depth) {
         // base case 1: no samples left
         if (D.size() == 0) {
             return;
         }
 
-        // base case 2: all classes in D are the same
-        String curClass = D.get(0).get(0);
-        boolean allSame = true;
-        for (ArrayList<String> record : D) {
-            if (!record.get(0).equals(curClass)) {
-                allSame = false;
-                break;
-            }
-        }
+        // remember the class distribution; pruning may turn this node into a leaf later
+        Map<String, Integer> counts = classCounts(D);
+        parent.majority = majority(counts);
+        parent.count = D.size();
+        parent.errors = D.size() - counts.get(parent.majority);
 
-        if (allSame) {
-            Node leaf = new Node(-1, curClass);
-            parent.addChild(leaf);
+        // base case 2: all classes in D are the same
+        if (counts.size() == 1) {
+            makeLeaf(parent);
             return;
         }
 
         // base case 3: no attributes left to partition; only class label left
         if (D.get(0).size() == 1) {
-            // get class label majority
-            String majorityClass = expectedClass(D);
-            Node leaf = new Node(-1, majorityClass);
-            parent.addChild(leaf);
+            makeLeaf(parent);
+            return;
+        }
+
+        // pre-pruning: too deep, or too few records to give two branches of minLeaf records
+        if (depth >= maxDepth || D.size() < 2 * minLeaf) {
+            makeLeaf(parent);
             return;
         }
 
@@ -113,6 +510,7 @@ public class DecisionTree {
         // for all attributes in D
         for (int i = 0; i < D.get(0).size(); i++) {
             if (i == 0) continue; // skip the class label
+            if (minLeaf > 1 && bigBranches(D, i) < 2) continue; // split would leave fewer than two branches of minLeaf records
 
             // compute Information Gain
             double IG = entropy - information(D, i);
@@ -122,13 +520,11 @@ public class DecisionTree {
             }
         }
 
-        // base case 2: no attribute provides any information gain
-        //if (maxIG <= 0) {
-            //String majorityClass = expectedClass(D);
-            //Node leaf = new Node(-1, majorityClass);
-            //parent.addChild(leaf);
-            //return;
-        //}
+        // base case 4: no attribute provides enough information gain (or none is eligible)
+        if (featIdx == 0 || maxIG < minGain) {
+            makeLeaf(parent);
+            return;
+        }
 
         parent.index = featIdx;
 
@@ -148,10 +544,107 @@ public class DecisionTree {
                 subsublist.remove(featIdx);
             }
 
-            generateTree(sublist, child);
+            generateTree(sublist, child, depth + 1);
+        }
+    }
+
+    /**
+     * Makes node a leaf predicting its majority class
+     * @param node
+     */
+    public static void makeLeaf(Node node) {
+        node.addChild(new Node(-1, node.majority));
+    }
+
+    /**
+     * Pessimistic-error pruning (C4.5 subtree replacement), done in a single
+     *  bottom-up pass. A subtree is replaced by a leaf when the leaf's estimated
+     *  error is no worse than the sum of the estimated errors of its leaves.
+     * @param node
+     * @return the estimated number of errors of the (possibly pruned) subtree
+     */
+    public static double prune(Node node) {
+        double leafErrors = node.errors + addErrs(node.count, node.errors);
+        if (node.index < 0) return leafErrors; // already right before a leaf
+
+        double treeErrors = 0;
+        for (Node child : node.children) {
+            treeErrors += prune(child);
+        }
+
+        // 0.1 is the same slack C4.5 allows in favour of the simpler tree
+        if (leafErrors <= treeErrors + 0.1) {
+            node.index = -2;
+            node.children = new ArrayList<>(1);
+            makeLeaf(node);
+            return leafErrors;
+        }
+
+        return treeErrors;
+    }
+
+    /**
+     * Extra errors to add to e errors in N records to get the upper limit of the
+     *  confidence interval for the error rate (from Quinlan's C4.5)
+     * @param N
+     * @param e
+     * @return
+     */
+    public static double addErrs(double N, double e) {
+        if (N <= 0) return 0;
+
+        if (e < 1E-6) {
+            return N * (1 - Math.exp(Math.log(confidence) / N));
+        }
+        else if (e < 0.9999) {
+            double val0 = N * (1 - Math.exp(Math.log(confidence) / N));
+            return val0 + e * (addErrs(N, 1.0) - val0);
+        }
+        else if (e + 0.5 >= N) {
+            return 0.67 * (N - e);
+        }
+        else {
+            double pr = (e + 0.5 + coeff/2 + Math.sqrt(coeff * ((e + 0.5) * (1 - (e + 0.5)/N) + coeff/4))) / (N + coeff);
+            return N * pr - e;
         }
     }
 
+    /**
+     * Sets coeff to the square of the normal deviate for the confidence factor
+     *  (linear interpolation in the same table C4.5 uses)
+     */
+    public static void setCoeff() {
+        double[] val = {0, 0.000000001, 0.00000001, 0.0000001, 0.000001, 0.00001, 0.00005, 0.0001,
+                0.0005, 0.001, 0.005, 0.01, 0.05, 0.10, 0.20, 0.40, 1.00};
+        double[] dev = {100, 6.0, 5.61, 5.2, 4.75, 4.26, 3.89, 3.72, 3.29, 3.09, 2.58, 2.33, 1.65, 1.28, 0.84, 0.25, 0.00};
+
+        int i = 0;
+        while (confidence > val[i]) i++;
+
+        double z = dev[i-1] + (dev[i] - dev[i-1]) * (confidence - val[i-1]) / (val[i] - val[i-1]);
+        coeff = z * z;
+    }
+
+    /**
+     * Counts the branches splitting on featureIdx would produce that hold at least minLeaf records
+     * @param D
+     * @param featureIdx
+     * @return
+     */
+    public static int bigBranches(List<ArrayList<String>> D, int featureIdx) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (ArrayList<String> record : D) {
+            counts.merge(record.get(featureIdx), 1, Integer::sum);
+        }
+
+        int big = 0;
+        for (int c : counts.values()) {
+            if (c >= minLeaf) big++;
+        }
+
+        return big;
+    }
+
     /**
      * tests the decision tree
      * @param outFile
@@ -221,6 +714,15 @@ public class DecisionTree {
      * @return
      */
     public static String expectedClass(List<ArrayList<String>> D) {
+        return majority(classCounts(D));
+    }
+
+    /**
+     * Counts the class labels in D
+     * @param D
+     * @return Map - class label, count
+     */
+    public static Map<String, Integer> classCounts(List<ArrayList<String>> D) {
         Map<String, Integer> counts = new HashMap<>();
         for (ArrayList<String> classLabel : D) {
             String cl = classLabel.get(0);
@@ -228,10 +730,20 @@ public class DecisionTree {
             else counts.computeIfPresent(cl, (String k, Integer v) -> v + 1);
         }
 
+        return counts;
+    }
+
+    /**
+     * Returns the class with the highest count; ties go to the smallest class label
+     * @param counts
+     * @return
+     */
+    public static String majority(Map<String, Integer> counts) {
         int majorityClassCount = 0;
         String majorityClass = "";
         for (Map.Entry<String, Integer> entry : counts.entrySet()) {
-            if (entry.getValue() > majorityClassCount) {
+            if (entry.getValue() > majorityClassCount
+                    || (entry.getValue() == majorityClassCount && entry.getKey().compareTo(majorityClass) < 0)) {
                 majorityClassCount = entry.getValue();
                 majorityClass = entry.getKey();
             }
@@ -258,6 +770,27 @@ public class DecisionTree {
         return -entropy;
     }
 
+    /**
+     * Entropy of a class distribution given as counts: counts[from..from+len)
+     * @param counts
+     * @param from
+     * @param len
+     * @return
+     */
+    public static double entropy(long[] counts, int from, int len) {
+        long total = 0;
+        for (int i = from; i < from + len; i++) total += counts[i];
+
+        double entropy = 0;
+        for (int i = from; i < from + len; i++) {
+            if (counts[i] == 0) continue;
+            double pi = (double) counts[i] / total;
+            entropy += (pi * log(pi, 2));
+        }
+
+        return -entropy;
+    }
+
     /**
      * sum{j=1..v} |Dj|/|D| * entropy(Dj)
      * @param D
@@ -338,6 +871,13 @@ public class DecisionTree {
         ops.put("-s", "delimiter");
         ops.put("-w", "index of class label in data - most likely 0 or -1 (first or last column)"); // valid flags to NaiveBayes.java
         ops.put("-t", "display execution time");
+        ops.put("-c", "confidence factor for pruning (default 0.25); smaller values prune more");
+        ops.put("-u", "unpruned tree (no pessimistic-error pruning)");
+        ops.put("-g", "minimum information gain to split a node (default: any positive gain; negative never stops)");
+        ops.put("-m", "minimum number of records in at least two branches of a split (default 2; 1 turns it off)");
+        ops.put("-x", "maximum depth of the tree (default unlimited)");
+        ops.put("-o", "out-of-core training: grow the tree level by level from an encoded copy on disk (1 byte per value for columns with < 128 distinct values, next to the training set)");
+        ops.put("-f", "maximum number of frontier nodes histogrammed per scan with -o (default 1024)");
     }
 
     /**
@@ -360,6 +900,37 @@ public class DecisionTree {
                     case "-t": // time
                         timeThis = true;
                         continue;
+                    case "-o": // out of core
+                        outOfCore = true;
+                        continue;
+                    case "-f": // frontier nodes per scan
+                        i++;
+                        maxFrontier = Integer.parseInt(args[i]);
+                        if (maxFrontier < 1) die("Frontier nodes per scan must be at least 1.");
+                        break;
+                    case "-u": // unpruned
+                        prune = false;
+                        continue;
+                    case "-c": // confidence factor
+                        i++;
+                        confidence = Double.parseDouble(args[i]);
+                        if (confidence <= 0 || confidence > 1) die("Confidence factor must be in (0, 1].");
+                        break;
+                    case "-g": // minimum gain
+                        i++;
+                        minGain = Double.parseDouble(args[i]);
+                        if (Double.isNaN(minGain)) die("Minimum gain must be a number.");
+                        break;
+                    case "-m": // minimum records per branch
+                        i++;
+                        minLeaf = Integer.parseInt(args[i]);
+                        if (minLeaf < 1) die("Minimum records per branch must be at least 1.");
+                        break;
+                    case "-x": // maximum depth
+                        i++;
+                        maxDepth = Integer.parseInt(args[i]);
+                        if (maxDepth < 0) die("Maximum depth must be at least 0.");
+                        break;
                     case "-s":  // delimiter
                         i++;
                         delim = args[i];
@@ -373,6 +944,15 @@ public class DecisionTree {
         }
     }
 
+    /**
+     * If a fatal error occurs, call this to kill the program
+     * @param msg - the message to display before dying
+     */
+    public static void die(String msg) {
+        System.err.println(msg);
+        System.exit(1);
+    }
+
     public static void main(String[] args) throws IOException {
         setUpOps();
 
@@ -397,7 +977,8 @@ public class DecisionTree {
 
         // start timing here
         long startTime = System.nanoTime();
-        train();
+        if (outOfCore) trainOutOfCore();
+        else train();
         test(out);
         long stopTime = System.nanoTime();
 
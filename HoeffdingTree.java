@@ -0,0 +1,441 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * Hoeffding tree (VFDT): a decision tree that learns from a stream, one record at a time
+ * Each leaf keeps class counts per attribute value (the same statistics DecisionTree.information()
+ *  uses) and is split once the Hoeffding bound shows one attribute is clearly the best.
+ *  The tree can predict at any time; nothing is ever retrained.
+ * Works only for categorical variables so far
+ */
+public class HoeffdingTree {
+    // Node class for the Tree
+    static class Node {
+        private int attr = -1; // attribute split on, -1 for a leaf
+        private Node[] children; // indexed by the value code of attr; null where no record went yet
+        private long[] classCounts = new long[0]; // class distribution of the records that reached this node
+        private boolean[] used; // attributes split on along the path
+
+        // leaves only
+        private long[][][] stats; // [attribute][value][class] counts since the leaf was made
+        private long seen; // records seen since the leaf was made
+        private long lastCheck; // seen at the last split attempt
+
+        Node(boolean[] used) {
+            this.used = used;
+            this.stats = new long[used.length][0][];
+        }
+    }
+
+    private static Map<String, String> ops = new HashMap<>(); // map of options, descriptions
+
+    private static boolean header; // false by default
+    private static String delim = " ";
+    private static int where; // where is the class label, (indexed 0; can use negative values [e.g. -1 is the last]) - by default 0
+    private static boolean timeThis; // if true - display execution time on exit - false by default
+
+    private static int grace = 200; // records a leaf sees between split attempts
+    private static double delta = 1e-7; // 1 - confidence that the chosen attribute is the best one
+    private static double tie = 0.05; // split anyway once the bound is this tight (attributes are nearly tied)
+
+    private static File trainingSet; // "-" reads the training stream from stdin
+    private static File testingSet;
+
+    // dictionaries: value -> code, per attribute and for the class label
+    private static int numAttr;
+    private static List<Map<String, Integer>> codes = new ArrayList<>();
+    private static Map<String, Integer> classCodes = new HashMap<>();
+    private static List<String> classNames = new ArrayList<>();
+
+    private static Node root;
+    private static int leaves;
+
+    /**
+     * Trains on the whole training stream, one record at a time
+     * @throws IOException
+     */
+    public static void train() throws IOException {
+        BufferedReader br = trainingSet.getPath().equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in))
+                : new BufferedReader(new FileReader(trainingSet));
+        String line;
+
+        if (header) br.readLine(); // skip header row
+        while ((line = br.readLine()) != null) {
+            learn(line.split(delim));
+        }
+
+        br.close();
+    }
+
+    /**
+     * Learns from one record: routes it to its leaf, updates the leaf's counts
+     *  and tries to split the leaf every grace records
+     * @param row - the record, class label included
+     */
+    public static void learn(String[] row) {
+        if (root == null) {
+            numAttr = row.length - 1;
+            for (int k = 0; k < numAttr; k++) codes.add(new HashMap<>());
+            root = new Node(new boolean[numAttr]);
+            leaves = 1;
+        }
+
+        if (row.length != numAttr + 1) {
+            System.err.printf("Record with %d columns instead of %d. Skipped.%n", row.length, numAttr + 1);
+            return;
+        }
+
+        int[] x = new int[numAttr];
+        int y = encode(row, x, true);
+
+        Node n = root;
+        while (n.attr >= 0) {
+            n.classCounts = count(n.classCounts, y);
+
+            int v = x[n.attr];
+            if (v >= n.children.length) n.children = Arrays.copyOf(n.children, codes.get(n.attr).size());
+            if (n.children[v] == null) {
+                // value never seen here before; start a new leaf for it
+                boolean[] used = Arrays.copyOf(n.used, numAttr);
+                used[n.attr] = true;
+                n.children[v] = new Node(used);
+                leaves++;
+            }
+
+            n = n.children[v];
+        }
+
+        n.classCounts = count(n.classCounts, y);
+        for (int k = 0; k < numAttr; k++) {
+            if (n.used[k]) continue;
+
+            long[][] byValue = n.stats[k];
+            if (x[k] >= byValue.length) byValue = n.stats[k] = Arrays.copyOf(byValue, codes.get(k).size());
+            if (byValue[x[k]] == null) byValue[x[k]] = new long[0];
+            byValue[x[k]] = count(byValue[x[k]], y);
+        }
+
+        n.seen++;
+        if (n.seen - n.lastCheck >= grace) {
+            n.lastCheck = n.seen;
+            attemptSplit(n);
+        }
+    }
+
+    /**
+     * Splits leaf on the attribute with the highest information gain if the Hoeffding bound
+     *  says it beats the runner-up (and not splitting at all), or if the two are tied
+     * @param leaf
+     */
+    public static void attemptSplit(Node leaf) {
+        // class distribution of the records in stats; every unused attribute counts every record
+        long[] totals = null;
+        for (int k = 0; k < numAttr && totals == null; k++) {
+            if (leaf.used[k]) continue;
+
+            totals = new long[classNames.size()];
+            for (long[] counts : leaf.stats[k]) {
+                if (counts == null) continue;
+                for (int c = 0; c < counts.length; c++) totals[c] += counts[c];
+            }
+        }
+
+        if (totals == null) return; // no attributes left
+
+        int nonZero = 0;
+        for (long t : totals) if (t > 0) nonZero++;
+        if (nonZero < 2) return; // pure
+
+        double entropy = DecisionTree.entropy(totals, 0, totals.length);
+        double best = 0, second = 0; // not splitting has a gain of 0
+        int bestAttr = -1;
+
+        for (int k = 0; k < numAttr; k++) {
+            if (leaf.used[k]) continue;
+
+            // sum{j=1..v} |Dj|/|D| * entropy(Dj)
+            double info = 0;
+            for (long[] counts : leaf.stats[k]) {
+                if (counts == null) continue;
+
+                long size = 0;
+                for (long c : counts) size += c;
+                if (size > 0) info += DecisionTree.entropy(counts, 0, counts.length) * size / leaf.seen;
+            }
+
+            double IG = entropy - info;
+            if (IG > best) {
+                second = best;
+                best = IG;
+                bestAttr = k;
+            }
+            else if (IG > second) {
+                second = IG;
+            }
+        }
+
+        if (bestAttr < 0) return;
+
+        // Hoeffding bound: with probability 1 - delta the true mean is within epsilon of the observed one
+        double range = DecisionTree.log(Math.max(classNames.size(), 2), 2);
+        double epsilon = Math.sqrt(range * range * Math.log(1 / delta) / (2.0 * leaf.seen));
+        if (best - second <= epsilon && epsilon >= tie) return;
+
+        // turn leaf into a split; its children start with the class counts seen for their value
+        leaf.attr = bestAttr;
+        leaf.children = new Node[codes.get(bestAttr).size()];
+        boolean[] used = Arrays.copyOf(leaf.used, numAttr);
+        used[bestAttr] = true;
+
+        long[][] byValue = leaf.stats[bestAttr];
+        for (int v = 0; v < byValue.length; v++) {
+            if (byValue[v] == null) continue;
+
+            Node child = new Node(used);
+            child.classCounts = Arrays.copyOf(byValue[v], byValue[v].length);
+            leaf.children[v] = child;
+            leaves++;
+        }
+
+        leaves--; // leaf itself is no longer one
+        leaf.stats = null;
+    }
+
+    /**
+     * Predicts the class of a record; can be called at any point while learning
+     * @param row - the record (its class label is ignored)
+     * @return the predicted class label
+     */
+    public static String predict(String[] row) {
+        int[] x = new int[numAttr];
+        encode(row, x, false);
+
+        // stop at the deepest node that has seen records like this one
+        Node n = root;
+        while (n.attr >= 0) {
+            int v = x[n.attr];
+            if (v < 0 || v >= n.children.length || n.children[v] == null) break;
+
+            Node child = n.children[v];
+            long size = 0;
+            for (long c : child.classCounts) size += c;
+            if (size == 0) break;
+
+            n = child;
+        }
+
+        int maxarg = 0;
+        for (int c = 1; c < n.classCounts.length; c++) {
+            if (n.classCounts[c] > n.classCounts[maxarg]) maxarg = c;
+        }
+
+        return classNames.get(maxarg);
+    }
+
+    /**
+     * Test the tree on testSet and write predictions and accuracy (100*right/total %) to outFile
+     * @param outFile the file to which the result is being written
+     * @throws IOException
+     */
+    public static void test(File outFile) throws IOException {
+        BufferedReader testing = new BufferedReader(new FileReader(testingSet));
+        BufferedWriter out = new BufferedWriter(new FileWriter(outFile));
+
+        int error = 0; // count incorrectly-predicted records
+        int N = 0; // number of test samples
+        String line;
+
+        if (header) testing.readLine(); // skip header row
+        while ((line = testing.readLine()) != null) {
+            N++;
+
+            String[] row = line.split(delim);
+            String prediction = predict(row);
+            if (!prediction.equals(row[where < 0 ? where + row.length : where])) error++;
+
+            out.write(prediction + "\n");
+        }
+
+        double errorRate = (double) error/N;
+        double accuracy = (1 - errorRate) * 100; // accuracy
+        out.write(String.format("Accuracy: %.3f%%%n", accuracy));
+
+        testing.close();
+        out.close();
+    }
+
+    /**
+     * Encodes the attributes of a record into x
+     * @param row - the record, class label included
+     * @param x - attribute value codes; -1 for values not seen yet if grow is false
+     * @param grow - add values not seen yet to the dictionaries
+     * @return the class code, or -1 if the class hasn't been seen and grow is false
+     */
+    public static int encode(String[] row, int[] x, boolean grow) {
+        int classIdx = where < 0 ? where + row.length : where;
+        for (int c = 0, k = 0; c < row.length && k < numAttr; c++) {
+            if (c == classIdx) continue;
+            x[k] = code(codes.get(k), row[c], grow, null);
+            k++;
+        }
+
+        return code(classCodes, row[classIdx], grow, classNames);
+    }
+
+    /**
+     * Code of value in dict
+     * @param dict
+     * @param value
+     * @param grow - give unseen values the next code
+     * @param names - if not null, unseen values are added to it as well
+     * @return
+     */
+    public static int code(Map<String, Integer> dict, String value, boolean grow, List<String> names) {
+        Integer code = dict.get(value);
+        if (code != null) return code;
+        if (!grow) return -1;
+
+        code = dict.size();
+        dict.put(value, code);
+        if (names != null) names.add(value);
+
+        return code;
+    }
+
+    /**
+     * Increments counts[c], growing counts if needed
+     * @param counts
+     * @param c
+     * @return counts, or the grown copy of it
+     */
+    public static long[] count(long[] counts, int c) {
+        if (c >= counts.length) counts = Arrays.copyOf(counts, Math.max(c + 1, classNames.size()));
+        counts[c]++;
+        return counts;
+    }
+
+    /**
+     * Sets up the options
+     */
+    public static void setUpOps() {
+        // could use JCommander (http://jcommander.org/)
+        ops.put("-h", "header present in data");
+        ops.put("-s", "delimiter");
+        ops.put("-w", "index of class label in data - most likely 0 or -1 (first or last column)");
+        ops.put("-t", "display execution time");
+        ops.put("-g", "grace period: records a leaf sees between split attempts (default 200)");
+        ops.put("-c", "split confidence: probability of choosing the wrong attribute (default 1e-7)");
+        ops.put("-a", "tie threshold: split when the Hoeffding bound is below this (default 0.05)");
+    }
+
+    /**
+     * Parses the options you supply
+     * @param args - the list of arguments passed in by the user
+     */
+    public static void parseOps(String[] args) {
+        for (int i = 0; i < args.length - 3; i++) {
+            if (args[i].charAt(0) == '-') {
+                String op = args[i];
+                if (!ops.containsKey(op)) {
+                    System.out.printf("%s it not a valid option. Skipped.%n", op);
+                    continue;
+                }
+
+                switch (op) {
+                    case "-h":  // header row in training and testing sets
+                        header = true;
+                        continue;
+                    case "-t": // time
+                        timeThis = true;
+                        continue;
+                    case "-s":  // delimiter
+                        i++;
+                        delim = args[i];
+                        break;
+                    case "-w":  // where the class label is (0,1,2...-1,-2,-3, etc.)
+                        i++;
+                        where = Integer.parseInt(args[i]);
+                        break;
+                    case "-g": // grace period
+                        i++;
+                        grace = Integer.parseInt(args[i]);
+                        if (grace < 1) die("Grace period must be at least 1.");
+                        break;
+                    case "-c": // split confidence
+                        i++;
+                        delta = Double.parseDouble(args[i]);
+                        if (!(delta > 0 && delta < 1)) die("Split confidence must be between 0 and 1 (exclusive).");
+                        break;
+                    case "-a": // tie threshold
+                        i++;
+                        tie = Double.parseDouble(args[i]);
+                        if (!(tie >= 0)) die("Tie threshold must not be negative.");
+                        break;
+                }
+            }
+        }
+    }
+
+    /**
+     * If a fatal error occurs, call this to kill the program
+     * @param msg - the message to display before dying
+     */
+    public static void die(String msg) {
+        System.err.println(msg);
+        System.exit(1);
+    }
+
+    public static void main(String[] args) throws IOException {
+        setUpOps();
+
+        if (args.length < 3) {
+            System.out.println("USAGE: java HoeffdingTree [OPTION] TrainingSet TestingSet OutputFile");
+            System.out.println("\tTrainingSet can be - to read the training stream from stdin");
+            if (ops.size() > 0) {
+                System.out.println("OPTIONS:");
+                for (Map.Entry<String, String> entry : ops.entrySet()){
+                    System.out.println("\t" + entry.getKey() + " - " + entry.getValue());
+                }
+            }
+
+            System.exit(1);
+        }
+
+        parseOps(args);
+
+        int first = args.length-3;
+        trainingSet = new File(args[first]);
+        testingSet = new File(args[first+1]);
+        File out = new File(args[first+2]);
+
+        // start timing here
+        long startTime = System.nanoTime();
+        train();
+        test(out);
+        long stopTime = System.nanoTime();
+
+        if (timeThis) {
+            long duration = (stopTime - startTime)/1000000; // in ms
+            double simpler = 0;
+            String unit = "hr";
+            if (duration > 1000*60*60) {
+                simpler = duration/(1000*60*60.); // hours
+            }
+
+            else if (duration > 1000*60) {
+                simpler = duration/(1000*60.); // minutes
+                unit = "min";
+            }
+
+            else if (duration > 1000) {
+                simpler = duration/(1000.); // seconds
+                unit = "s";
+            }
+
+            System.out.printf("Execution time: %d ms%n", duration);
+            if (simpler != 0) System.out.printf("\t%.5f %s%n", simpler, unit);
+            System.out.printf("Leaves: %d%n", leaves);
+        }
+    }
+}
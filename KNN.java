@@ -0,0 +1,539 @@
+import java.io.*;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * k-nearest-neighbours classifier backed by a vantage-point tree
+ * The training points are kept in one contiguous double[] (row-major, in tree order) and the
+ *  tree itself is implicit: the node over points [lo, hi) has its vantage point at lo, its inside
+ *  subtree (distance <= radius[lo]) over [lo+1, mid) and its outside subtree over [mid, hi).
+ *  Test records are classified in parallel batches.
+ * Euclidean and Manhattan distances for numeric features, Hamming distance for categorical ones
+ */
+public class KNN {
+    // bounded max-heap of the k nearest points found so far
+    static class Neighbours {
+        private double[] dist;
+        private int[] point;
+        private int size;
+
+        Neighbours(int k) {
+            dist = new double[k];
+            point = new int[k];
+        }
+
+        // distance to the k-th nearest point so far; anything farther can be skipped
+        public double bound() {
+            return size < dist.length ? Double.POSITIVE_INFINITY : dist[0];
+        }
+
+        public void offer(double d, int p) {
+            if (size < dist.length) {
+                // sift up
+                int i = size++;
+                while (i > 0 && dist[(i - 1) / 2] < d) {
+                    dist[i] = dist[(i - 1) / 2];
+                    point[i] = point[(i - 1) / 2];
+                    i = (i - 1) / 2;
+                }
+
+                dist[i] = d;
+                point[i] = p;
+            }
+            else if (d < dist[0]) {
+                // replace the farthest and sift down
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size) break;
+                    if (child + 1 < size && dist[child + 1] > dist[child]) child++;
+                    if (dist[child] <= d) break;
+
+                    dist[i] = dist[child];
+                    point[i] = point[child];
+                    i = child;
+                }
+
+                dist[i] = d;
+                point[i] = p;
+            }
+        }
+    }
+
+    private static Map<String, String> ops = new HashMap<>(); // map of options, descriptions
+
+    private static boolean header; // false by default
+    private static String delim = " ";
+    private static int where; // where is the class label, (indexed 0; can use negative values [e.g. -1 is the last]) - by default 0
+    private static boolean timeThis; // if true - display execution time on exit - false by default
+
+    private static int k = 5; // number of neighbours that vote
+    private static String metric = "euclidean"; // euclidean, manhattan or hamming
+
+    private static final int LEAF = 16; // ranges this small are scanned instead of split
+    private static final int BATCH = 1 << 16; // test records classified per parallel batch, at most
+    private static final long BATCH_BYTES = 64L << 20; // ... and at most this much query data per batch
+    private static final int MAX_ARRAY = Integer.MAX_VALUE - 8; // largest array the JVM reliably allocates
+    private static final int PARALLEL = 1 << 16; // compute distances to a vantage point in parallel above this many points
+
+    private static File trainingSet;
+    private static File testingSet;
+
+    // training points, in tree order
+    private static int n; // number of points
+    private static int d; // number of features
+    private static double[] points; // n*d, row-major (the array may be longer)
+    private static int[] labels;
+    private static double[] radius; // radius[lo]: radius of the vantage point of the node over [lo, hi)
+
+    private static Map<String, Integer> classCodes = new HashMap<>();
+    private static List<String> classNames = new ArrayList<>();
+    private static List<Map<String, Integer>> categories; // hamming: value -> code, per feature
+
+    /**
+     * Reads the training points and builds the vantage-point tree over them
+     * @throws IOException
+     */
+    public static void train() throws IOException {
+        BufferedReader br = new BufferedReader(new FileReader(trainingSet));
+        double[] raw = new double[1024];
+        int[] rawLabels = new int[128];
+        String line;
+
+        if (header) br.readLine(); // skip header row
+        while ((line = br.readLine()) != null) {
+            String[] row = line.split(delim);
+            if (n == 0) {
+                d = row.length - 1;
+                if (metric.equals("hamming")) {
+                    categories = new ArrayList<>();
+                    for (int f = 0; f < d; f++) categories.add(new HashMap<>());
+                }
+            }
+
+            if (row.length != d + 1) {
+                System.err.printf("Record with %d columns instead of %d. Skipped.%n", row.length, d + 1);
+                continue;
+            }
+
+            long need = (long) (n + 1) * d;
+            if (need > raw.length) raw = Arrays.copyOf(raw, newLength(raw.length, need));
+            if (n >= rawLabels.length) rawLabels = Arrays.copyOf(rawLabels, newLength(rawLabels.length, n + 1L));
+
+            String yi = parseRecord(row, raw, n * d, true);
+            if (!classCodes.containsKey(yi)) {
+                classCodes.put(yi, classNames.size());
+                classNames.add(yi);
+            }
+
+            rawLabels[n++] = classCodes.get(yi);
+        }
+
+        br.close();
+        if (n == 0) die("Nothing in training set");
+
+        // build the tree over a permutation, then lay the points out in tree order
+        int[] idx = new int[n];
+        for (int i = 0; i < n; i++) idx[i] = i;
+        radius = new double[n];
+        build(raw, idx, new double[n], 0, n, new Random(42));
+
+        // in place, so the points are never held twice (raw keeps its spare capacity)
+        permute(raw, rawLabels, idx);
+        points = raw;
+        labels = rawLabels;
+    }
+
+    /**
+     * Rearranges the points (and their labels) in place so that point i becomes the
+     *  point at idx[i], following each cycle of the permutation with one spare row
+     * @param x - the points, row-major
+     * @param y - their labels
+     * @param idx - the permutation; destroyed
+     */
+    public static void permute(double[] x, int[] y, int[] idx) {
+        double[] tmp = new double[d];
+        for (int start = 0; start < n; start++) {
+            if (idx[start] == start) continue;
+
+            System.arraycopy(x, start * d, tmp, 0, d);
+            int tmpLabel = y[start];
+
+            int j = start;
+            while (true) {
+                int from = idx[j];
+                idx[j] = j; // done
+                if (from == start) {
+                    System.arraycopy(tmp, 0, x, j * d, d);
+                    y[j] = tmpLabel;
+                    break;
+                }
+
+                System.arraycopy(x, from * d, x, j * d, d);
+                y[j] = y[from];
+                j = from;
+            }
+        }
+    }
+
+    /**
+     * New length for a buffer that has to hold need elements: grows by half, up to MAX_ARRAY
+     * @param length - current length
+     * @param need
+     * @return
+     */
+    public static int newLength(int length, long need) {
+        if (need > MAX_ARRAY) die("Training set too large: more than " + MAX_ARRAY + " values.");
+        return (int) Math.min(MAX_ARRAY, Math.max(length + (long) (length >> 1), need));
+    }
+
+    /**
+     * Builds the node over idx[lo..hi): picks a random vantage point, moves it to lo and
+     *  partitions the rest around the median distance to it
+     * @param raw - the points, in input order
+     * @param idx - permutation being built
+     * @param dist - scratch space, distance of idx[i] to the current vantage point
+     * @param lo
+     * @param hi
+     * @param random
+     */
+    public static void build(double[] raw, int[] idx, double[] dist, int lo, int hi, Random random) {
+        while (hi - lo > LEAF) {
+            swap(idx, dist, lo, lo + random.nextInt(hi - lo));
+            int vp = idx[lo] * d;
+
+            IntStream range = IntStream.range(lo + 1, hi);
+            if (hi - lo > PARALLEL) range = range.parallel();
+            range.forEach(i -> dist[i] = distance(raw, vp, raw, idx[i] * d));
+
+            int mid = (lo + 1 + hi) >>> 1;
+            select(idx, dist, lo + 1, hi, mid);
+            radius[lo] = dist[mid];
+
+            build(raw, idx, dist, lo + 1, mid, random);
+            lo = mid; // the outside subtree, without recursing
+        }
+    }
+
+    /**
+     * Quickselect on dist: afterwards dist[nth] is in its sorted place, with smaller
+     *  distances before it and larger ones after (idx moves along)
+     * @param idx
+     * @param dist
+     * @param lo
+     * @param hi
+     * @param nth
+     */
+    public static void select(int[] idx, double[] dist, int lo, int hi, int nth) {
+        hi--;
+        while (lo < hi) {
+            double pivot = dist[(lo + hi) >>> 1];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (dist[i] < pivot) i++;
+                while (dist[j] > pivot) j--;
+                if (i <= j) swap(idx, dist, i++, j--);
+            }
+
+            if (nth <= j) hi = j;
+            else if (nth >= i) lo = i;
+            else return;
+        }
+    }
+
+    public static void swap(int[] idx, double[] dist, int i, int j) {
+        int t = idx[i];
+        idx[i] = idx[j];
+        idx[j] = t;
+
+        double td = dist[i];
+        dist[i] = dist[j];
+        dist[j] = td;
+    }
+
+    /**
+     * Finds the k nearest training points to q in the node over [lo, hi)
+     * @param q - the query point
+     * @param lo
+     * @param hi
+     * @param nn - the nearest points so far
+     */
+    public static void search(double[] q, int lo, int hi, Neighbours nn) {
+        while (hi - lo > LEAF) {
+            double dvp = distance(q, 0, points, lo * d);
+            nn.offer(dvp, lo);
+
+            int mid = (lo + 1 + hi) >>> 1;
+            double r = radius[lo];
+
+            // the side q is on first; the other only if the ball of the k-th nearest crosses the radius
+            if (dvp <= r) {
+                search(q, lo + 1, mid, nn);
+                if (dvp + nn.bound() < r) return;
+                lo = mid;
+            }
+            else {
+                search(q, mid, hi, nn);
+                if (dvp - nn.bound() > r) return;
+                hi = mid;
+                lo = lo + 1;
+            }
+        }
+
+        for (int p = lo; p < hi; p++) {
+            nn.offer(distance(q, 0, points, p * d), p);
+        }
+    }
+
+    /**
+     * Majority vote of the k nearest training points; ties go to the class with the nearest point
+     * @param q
+     * @return index of the predicted class
+     */
+    public static int classify(double[] q) {
+        Neighbours nn = new Neighbours(Math.min(k, n));
+        search(q, 0, n, nn);
+
+        int[] votes = new int[classNames.size()];
+        double[] nearest = new double[classNames.size()];
+        Arrays.fill(nearest, Double.POSITIVE_INFINITY);
+        for (int i = 0; i < nn.size; i++) {
+            int c = labels[nn.point[i]];
+            votes[c]++;
+            nearest[c] = Math.min(nearest[c], nn.dist[i]);
+        }
+
+        int maxarg = 0;
+        for (int c = 1; c < votes.length; c++) {
+            if (votes[c] > votes[maxarg] || (votes[c] == votes[maxarg] && nearest[c] < nearest[maxarg])) maxarg = c;
+        }
+
+        return maxarg;
+    }
+
+    /**
+     * Distance between the points at a[ao..ao+d) and b[bo..bo+d)
+     * @param a
+     * @param ao
+     * @param b
+     * @param bo
+     * @return
+     */
+    public static double distance(double[] a, int ao, double[] b, int bo) {
+        double sum = 0;
+        switch (metric) {
+            case "manhattan":
+                for (int f = 0; f < d; f++) sum += Math.abs(a[ao + f] - b[bo + f]);
+                return sum;
+            case "hamming":
+                for (int f = 0; f < d; f++) if (a[ao + f] != b[bo + f]) sum++;
+                return sum;
+            default: // euclidean
+                for (int f = 0; f < d; f++) {
+                    double diff = a[ao + f] - b[bo + f];
+                    sum += diff * diff;
+                }
+                return Math.sqrt(sum);
+        }
+    }
+
+    /**
+     * Parses the features of a record into x[off..off+d)
+     * @param row - the record, class label included
+     * @param x
+     * @param off
+     * @param grow - hamming: give unseen values a new code (training) rather than -1 (testing)
+     * @return the class label
+     */
+    public static String parseRecord(String[] row, double[] x, int off, boolean grow) {
+        int classIdx = where < 0 ? where + row.length : where;
+        for (int c = 0, f = 0; c < row.length && f < d; c++) {
+            if (c == classIdx) continue;
+
+            if (categories != null) {
+                Map<String, Integer> values = categories.get(f);
+                Integer code = values.get(row[c]);
+                if (code == null && grow) values.put(row[c], code = values.size());
+                x[off + f] = code == null ? -1 : code;
+            }
+            else {
+                try {
+                    x[off + f] = Double.parseDouble(row[c]);
+                } catch (NumberFormatException e) {
+                    die(String.format("\"%s\" is not a number. Use -m hamming for categorical features.", row[c]));
+                }
+            }
+
+            f++;
+        }
+
+        return row[classIdx];
+    }
+
+    /**
+     * Test the classifier on testSet and write predictions and classifier
+     *  accuracy (100*right/total %) to outFile
+     * @param outFile the file to which the result is being written
+     * @throws IOException
+     */
+    public static void test(File outFile) throws IOException {
+        BufferedReader testing = new BufferedReader(new FileReader(testingSet));
+        BufferedWriter out = new BufferedWriter(new FileWriter(outFile));
+
+        int error = 0; // count incorrectly-predicted records
+        int N = 0; // number of test samples
+        int batch = (int) Math.max(1, Math.min(BATCH, BATCH_BYTES / (8L * Math.max(d, 1))));
+        double[][] queries = new double[batch][]; // rows allocated as they are first needed
+        String[] actual = new String[batch];
+        int[] predicted = new int[batch];
+        boolean done = false;
+
+        if (header) testing.readLine(); // skip header row
+        while (!done) {
+            // read a batch
+            int size = 0;
+            String line;
+            while (size < batch && (line = testing.readLine()) != null) {
+                if (queries[size] == null) queries[size] = new double[d];
+                actual[size] = parseRecord(line.split(delim), queries[size], 0, false);
+                size++;
+            }
+            done = size < batch;
+
+            // classify it in parallel
+            IntStream.range(0, size).parallel().forEach(i -> predicted[i] = classify(queries[i]));
+
+            for (int i = 0; i < size; i++) {
+                String prediction = classNames.get(predicted[i]);
+                if (!prediction.equals(actual[i])) error++;
+                out.write(prediction + "\n");
+            }
+
+            N += size;
+        }
+
+        double errorRate = (double) error/N;
+        double accuracy = (1 - errorRate) * 100; // accuracy
+        out.write(String.format("Accuracy: %.3f%%%n", accuracy));
+
+        testing.close();
+        out.close();
+    }
+
+    /**
+     * Sets up the options
+     */
+    public static void setUpOps() {
+        // could use JCommander (http://jcommander.org/)
+        ops.put("-h", "header present in data");
+        ops.put("-s", "delimiter");
+        ops.put("-w", "index of class label in data - most likely 0 or -1 (first or last column)");
+        ops.put("-t", "display execution time");
+        ops.put("-k", "number of neighbours (default 5)");
+        ops.put("-m", "distance: euclidean (default), manhattan, or hamming for categorical features");
+    }
+
+    /**
+     * Parses the options you supply
+     * @param args - the list of arguments passed in by the user
+     */
+    public static void parseOps(String[] args) {
+        for (int i = 0; i < args.length - 3; i++) {
+            if (args[i].charAt(0) == '-') {
+                String op = args[i];
+                if (!ops.containsKey(op)) {
+                    System.out.printf("%s it not a valid option. Skipped.%n", op);
+                    continue;
+                }
+
+                switch (op) {
+                    case "-h":  // header row in training and testing sets
+                        header = true;
+                        continue;
+                    case "-t": // time
+                        timeThis = true;
+                        continue;
+                    case "-s":  // delimiter
+                        i++;
+                        delim = args[i];
+                        break;
+                    case "-w":  // where the class label is (0,1,2...-1,-2,-3, etc.)
+                        i++;
+                        where = Integer.parseInt(args[i]);
+                        break;
+                    case "-k": // neighbours
+                        i++;
+                        k = Integer.parseInt(args[i]);
+                        if (k < 1) die("Number of neighbours must be at least 1.");
+                        break;
+                    case "-m": // metric
+                        i++;
+                        metric = args[i].toLowerCase();
+                        if (!metric.equals("euclidean") && !metric.equals("manhattan") && !metric.equals("hamming"))
+                            die(args[i] + " is not a valid distance.");
+                        break;
+                }
+            }
+        }
+    }
+
+    /**
+     * If a fatal error occurs, call this to kill the program
+     * @param msg - the message to display before dying
+     */
+    public static void die(String msg) {
+        System.err.println(msg);
+        System.exit(1);
+    }
+
+    public static void main(String[] args) throws IOException {
+        setUpOps();
+
+        if (args.length < 3) {
+            System.out.println("USAGE: java KNN [OPTION] TrainingSet TestingSet OutputFile");
+            if (ops.size() > 0) {
+                System.out.println("OPTIONS:");
+                for (Map.Entry<String, String> entry : ops.entrySet()){
+                    System.out.println("\t" + entry.getKey() + " - " + entry.getValue());
+                }
+            }
+
+            System.exit(1);
+        }
+
+        parseOps(args);
+
+        int first = args.length-3;
+        trainingSet = new File(args[first]);
+        testingSet = new File(args[first+1]);
+        File out = new File(args[first+2]);
+
+        // start timing here
+        long startTime = System.nanoTime();
+        train();
+        test(out);
+        long stopTime = System.nanoTime();
+
+        if (timeThis) {
+            long duration = (stopTime - startTime)/1000000; // in ms
+            double simpler = 0;
+            String unit = "hr";
+            if (duration > 1000*60*60) {
+                simpler = duration/(1000*60*60.); // hours
+            }
+
+            else if (duration > 1000*60) {
+                simpler = duration/(1000*60.); // minutes
+                unit = "min";
+            }
+
+            else if (duration > 1000) {
+                simpler = duration/(1000.); // seconds
+                unit = "s";
+            }
+
+            System.out.printf("Execution time: %d ms%n", duration);
+            if (simpler != 0) System.out.printf("\t%.5f %s%n", simpler, unit);
+        }
+    }
+}
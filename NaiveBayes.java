@@ -28,6 +28,12 @@ public class NaiveBayes {
 
     private static Map<String, ArrayList<HashMap<String, Integer>>> posteriorTable = new HashMap<>();
 
+    // bounded-memory mode: per-class count-min sketches of (attribute, value) counts instead of posteriorTable
+    private static int budget; // memory budget in KB; 0 (default) keeps exact counts in posteriorTable
+    private static int depth = 4; // rows (hash functions) per sketch; 1 is plain hashing into buckets
+    private static int width; // counters per row
+    private static Map<String, int[]> sketches = new HashMap<>(); // class -> depth*width counters
+
     // currently, confusion matrix is not being used
     private static Map<String, HashMap<String, Integer>> confusionMatrix = new HashMap<>();
 
@@ -37,8 +43,10 @@ public class NaiveBayes {
      */
     public static void train() throws IOException {
         calcPriorProbs();
-        scanTestSet();
+        if (budget > 0) setUpSketches();
+        else scanTestSet();
         calcPosteriorProbs();
+        if (budget > 0) reportSketches();
     }
 
     /**
@@ -80,7 +88,8 @@ public class NaiveBayes {
                 for (int k = 0; k < x.size(); k++) {
                     String attr = x.get(k);
                     // count number of times attr_k appears in training set when appropriate class is present
-                    int count = posteriorTable.get(c).get(k).get(attr)+laplace; // Laplace smoothing
+                    // (a sketch only overestimates, so its estimate is capped at the class total)
+                    int count = (budget > 0 ? Math.min(estimate(c, k, attr), total) : posteriorTable.get(c).get(k).get(attr))+laplace; // Laplace smoothing
                     product *= (double) count/total;
 
                     if (debug) System.out.printf("P(%s | %s) = %f/%d = %.3f%n", attr, c, count, total, count/total);
@@ -177,10 +186,114 @@ public class NaiveBayes {
 
             // iterate through attributes
             for (int i = 0; i < numAttr; i++) {
+                if (budget > 0) {
+                    int[] sketch = sketches.get(yi);
+                    long h = hash(i, attrs.get(i));
+                    for (int j = 0; j < depth; j++) sketch[cell(h, j)]++;
+                    continue;
+                }
+
                 Map<String, Integer> hm = posteriorTable.get(yi).get(i);
                 hm.computeIfPresent(attrs.get(i), (String k, Integer v) -> v + 1); // update count
             }
         }
+
+        br.close();
+    }
+
+    /**
+     * Allocates one count-min sketch per class, splitting the memory budget evenly.
+     *  Replaces scanTestSet(): memory no longer depends on how many distinct values the attributes have
+     */
+    public static void setUpSketches() {
+        width = (int) Math.min(Integer.MAX_VALUE / depth, (long) budget * 1024 / (4L * depth * Y.size()));
+        if (width < 1) die("Memory budget too small for " + Y.size() + " classes");
+
+        for (String c : Y.keySet()) {
+            sketches.put(c, new int[depth * width]);
+        }
+    }
+
+    /**
+     * Count-min estimate of how many times attribute k had value attr in records of class c.
+     *  Never an underestimate; see reportSketches() for how far over it can be
+     * @param c - class
+     * @param k - attribute index
+     * @param attr - attribute value
+     * @return
+     */
+    public static int estimate(String c, int k, String attr) {
+        int[] sketch = sketches.get(c);
+        long h = hash(k, attr);
+        int min = Integer.MAX_VALUE;
+        for (int j = 0; j < depth; j++) {
+            min = Math.min(min, sketch[cell(h, j)]);
+        }
+
+        return min;
+    }
+
+    /**
+     * 64-bit hash of (attribute index, value). Every char is folded in (FNV-1a), so values
+     *  that share a 32-bit String.hashCode() (e.g. "Aa" and "BB") still get independent cells
+     * @param k
+     * @param attr
+     * @return
+     */
+    public static long hash(int k, String attr) {
+        long h = 0xCBF29CE484222325L ^ (k * 0x9E3779B97F4A7C15L);
+        for (int i = 0; i < attr.length(); i++) {
+            h ^= attr.charAt(i);
+            h *= 0x100000001B3L;
+        }
+
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Counter of row j for hash h (double hashing: h1 + j*h2)
+     * @param h
+     * @param j
+     * @return index in the sketch
+     */
+    public static int cell(long h, int j) {
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32) | 1;
+        return j * width + Math.floorMod(h1 + j * h2, width);
+    }
+
+    /**
+     * Prints the memory used by the sketches, their error bounds and collision rates
+     */
+    public static void reportSketches() {
+        double epsilon = Math.E / width;
+        double delta = Math.exp(-depth);
+
+        System.out.printf("Count-min sketches: %d x %d counters per class, %d KB total%n",
+                depth, width, 4L * depth * width * sketches.size() / 1024);
+        System.out.printf("Counts are overestimated by at most %.5f%% of the class total with probability %.3f%%%n",
+                100 * epsilon, 100 * (1 - delta));
+
+        for (Map.Entry<String, int[]> entry : sketches.entrySet()) {
+            int[] sketch = entry.getValue();
+            int filled = 0;
+            for (int i = 0; i < width; i++) {
+                if (sketch[i] != 0) filled++;
+            }
+
+            long total = (long) Y.get(entry.getKey()) * numAttr;
+            double fill = (double) filled / width;
+            double distinct = fill < 1 ? -width * Math.log(1 - fill) : Double.POSITIVE_INFINITY; // linear counting
+            double collisions = Math.pow(fill, depth); // chance that a value never seen still gets a non-zero count
+
+            System.out.printf("\tclass %s: %d counts, error bound +%.1f, %.2f%% filled, ~%.0f distinct values, collision rate %.4f%%%n",
+                    entry.getKey(), total, epsilon * total, 100 * fill, distinct, 100 * collisions);
+        }
     }
 
     /**
@@ -265,6 +378,8 @@ public class NaiveBayes {
         ops.put("-s", "delimiter");
         ops.put("-w", "index of class label in data - most likely 0 or -1 (first or last column)"); // valid flags to NaiveBayes.java
         ops.put("-t", "display execution time");
+        ops.put("-m", "memory budget in KB; keeps counts in count-min sketches instead of exact tables");
+        ops.put("-r", "rows (hash functions) per count-min sketch with -m (default 4; 1 is plain hashing)");
     }
 
     /**
@@ -298,6 +413,16 @@ public class NaiveBayes {
                     case "-t": // time
                         timeThis = true;
                         continue;
+                    case "-m": // memory budget
+                        i++;
+                        budget = Integer.parseInt(args[i]);
+                        if (budget < 0) die("Memory budget must not be negative.");
+                        break;
+                    case "-r": // sketch rows
+                        i++;
+                        depth = Integer.parseInt(args[i]);
+                        if (depth < 1) die("A count-min sketch needs at least 1 row.");
+                        break;
                     case "-s":  // delimiter
                         i++;
                         delim = args[i];
@@ -0,0 +1,349 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * Multinomial and Bernoulli Naive-Bayes for sparse data (e.g. bag-of-words)
+ * Records are in LibSVM format: label index:value index:value ...
+ *  The training set is read into CSR (compressed sparse row) arrays, per-class term counts
+ *  are kept in one dense term-major array, and a record is scored with a sparse dot product
+ *  against the per-class log-probabilities, so the work per record depends only on its non-zeros.
+ */
+public class SparseNaiveBayes {
+    private static Map<String, String> ops = new HashMap<>(); // map of options, descriptions
+
+    private static boolean header; // false by default
+    private static boolean timeThis; // if true - display execution time on exit - false by default
+    private static boolean bernoulli; // false (multinomial) by default
+    private static double alpha = 1; // additive (Laplace) smoothing
+
+    private static File trainingSet;
+    private static File testingSet;
+
+    // training set, CSR: the non-zeros of record r are indices/values[indptr[r]..indptr[r+1])
+    private static int N; // number of records
+    private static int nnz; // number of non-zeros
+    private static int[] indptr = new int[1024];
+    private static int[] indices = new int[1 << 16];
+    private static float[] values = new float[1 << 16];
+    private static int[] labels = new int[1024];
+
+    private static Map<String, Integer> classCodes = new HashMap<>();
+    private static List<String> classNames = new ArrayList<>();
+
+    // the model
+    private static int V; // vocabulary size (largest term index + 1)
+    private static int K; // number of classes
+    private static double[] weights; // term-major, weights[term*K + class]: log P(term | class) (Bernoulli: log odds)
+    private static double[] bias; // per class: log P(class) (Bernoulli: plus sum over terms of log(1 - P(term | class)))
+    private static boolean[] seen; // Bernoulli: terms already taken for the current record (a term may repeat in a record)
+
+    private static final int MAX_ARRAY = Integer.MAX_VALUE - 8; // largest array size the VM is sure to allow
+
+    /**
+     * Trains the classifier on trainSet
+     * @throws IOException
+     */
+    public static void train() throws IOException {
+        readTrainingSet();
+
+        K = classNames.size();
+        weights = new double[V * K];
+        seen = new boolean[V];
+        double[] classTotal = new double[K]; // multinomial: sum of term values; Bernoulli: number of records
+        int[] classCount = new int[K];
+
+        // counts: one pass over the non-zeros
+        for (int r = 0; r < N; r++) {
+            int c = labels[r];
+            classCount[c]++;
+            if (bernoulli) classTotal[c]++;
+
+            for (int p = indptr[r]; p < indptr[r + 1]; p++) {
+                if (bernoulli) {
+                    if (values[p] != 0 && !seen[indices[p]]) {
+                        seen[indices[p]] = true;
+                        weights[indices[p] * K + c]++;
+                    }
+                }
+                else {
+                    weights[indices[p] * K + c] += values[p];
+                    classTotal[c] += values[p];
+                }
+            }
+            if (bernoulli) {
+                for (int p = indptr[r]; p < indptr[r + 1]; p++) seen[indices[p]] = false;
+            }
+        }
+
+        // counts -> log-probabilities, in place
+        bias = new double[K];
+        for (int c = 0; c < K; c++) bias[c] = Math.log((double) classCount[c] / N);
+
+        for (int j = 0; j < V; j++) {
+            for (int c = 0; c < K; c++) {
+                int w = j * K + c;
+                if (bernoulli) {
+                    double p = (weights[w] + alpha) / (classTotal[c] + 2 * alpha);
+                    weights[w] = Math.log(p) - Math.log(1 - p);
+                    bias[c] += Math.log(1 - p);
+                }
+                else {
+                    weights[w] = Math.log((weights[w] + alpha) / (classTotal[c] + alpha * V));
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the training set into the CSR arrays
+     * @throws IOException
+     */
+    public static void readTrainingSet() throws IOException {
+        BufferedReader br = new BufferedReader(new FileReader(trainingSet));
+        String line;
+
+        if (header) br.readLine(); // skip header row
+        while ((line = br.readLine()) != null) {
+            String[] tokens = line.trim().split("\\s+");
+            if (tokens[0].isEmpty()) continue; // blank line
+
+            if (N + 2 > indptr.length) {
+                indptr = Arrays.copyOf(indptr, 2 * indptr.length);
+                labels = Arrays.copyOf(labels, 2 * labels.length);
+            }
+            if (nnz + tokens.length > indices.length) {
+                int size = Math.max(2 * indices.length, nnz + tokens.length);
+                indices = Arrays.copyOf(indices, size);
+                values = Arrays.copyOf(values, size);
+            }
+
+            if (!classCodes.containsKey(tokens[0])) {
+                classCodes.put(tokens[0], classNames.size());
+                classNames.add(tokens[0]);
+            }
+
+            labels[N] = classCodes.get(tokens[0]);
+            nnz += parseFeatures(tokens, indices, values, nnz);
+            N++;
+            indptr[N] = nnz;
+        }
+
+        br.close();
+        if (N == 0) die("Nothing in training set");
+
+        // weights is indexed term*K + class in int
+        long vocab = 0;
+        for (int p = 0; p < nnz; p++) vocab = Math.max(vocab, indices[p] + 1L);
+        if (vocab * classNames.size() > MAX_ARRAY) {
+            die("Too many terms * classes: " + vocab + " * " + classNames.size() + " weights do not fit in an array.");
+        }
+        V = (int) vocab;
+    }
+
+    /**
+     * Parses the index:value pairs of a record (tokens[1..]) into idx/val from off
+     * @param tokens - the record, label first
+     * @param idx
+     * @param val
+     * @param off
+     * @return the number of non-zeros parsed
+     */
+    public static int parseFeatures(String[] tokens, int[] idx, float[] val, int off) {
+        int n = 0;
+        for (int t = 1; t < tokens.length; t++) {
+            int colon = tokens[t].indexOf(':');
+            if (colon < 0) die("\"" + tokens[t] + "\" is not an index:value pair");
+
+            idx[off + n] = Integer.parseInt(tokens[t].substring(0, colon));
+            val[off + n] = Float.parseFloat(tokens[t].substring(colon + 1));
+            if (idx[off + n] < 0) die("Negative term index: " + tokens[t]);
+            n++;
+        }
+
+        return n;
+    }
+
+    /**
+     * Predicts the class of a record: argmax of bias + sparse dot product with weights
+     * @param idx - term indices of the non-zeros
+     * @param val - their values
+     * @param n - number of non-zeros
+     * @param score - scratch space, one entry per class
+     * @return index of the predicted class
+     */
+    public static int predict(int[] idx, float[] val, int n, double[] score) {
+        System.arraycopy(bias, 0, score, 0, K);
+        for (int p = 0; p < n; p++) {
+            if (idx[p] >= V) continue; // term never seen in training
+
+            double x = val[p];
+            if (bernoulli) {
+                if (val[p] == 0 || seen[idx[p]]) continue;
+                seen[idx[p]] = true;
+                x = 1;
+            }
+
+            int off = idx[p] * K;
+            for (int c = 0; c < K; c++) score[c] += x * weights[off + c];
+        }
+        if (bernoulli) {
+            for (int p = 0; p < n; p++) {
+                if (idx[p] < V) seen[idx[p]] = false;
+            }
+        }
+
+        int maxarg = 0;
+        for (int c = 1; c < K; c++) {
+            if (score[c] > score[maxarg]) maxarg = c;
+        }
+
+        return maxarg;
+    }
+
+    /**
+     * Test the classifier on testSet and write predictions and classifier
+     *  accuracy (100*right/total %) to outFile
+     * @param outFile the file to which the result is being written
+     * @throws IOException
+     */
+    public static void test(File outFile) throws IOException {
+        BufferedReader testing = new BufferedReader(new FileReader(testingSet));
+        BufferedWriter out = new BufferedWriter(new FileWriter(outFile));
+
+        int error = 0; // count incorrectly-predicted records
+        int N = 0; // number of test samples
+        int[] idx = new int[1024];
+        float[] val = new float[1024];
+        double[] score = new double[K];
+        String line;
+
+        if (header) testing.readLine(); // skip header row
+        while ((line = testing.readLine()) != null) {
+            String[] tokens = line.trim().split("\\s+");
+            if (tokens[0].isEmpty()) continue; // blank line
+            N++;
+
+            if (tokens.length > idx.length) {
+                idx = new int[tokens.length];
+                val = new float[tokens.length];
+            }
+
+            int n = parseFeatures(tokens, idx, val, 0);
+            String prediction = classNames.get(predict(idx, val, n, score));
+            if (!prediction.equals(tokens[0])) error++;
+
+            out.write(prediction + "\n");
+        }
+
+        double errorRate = (double) error/N;
+        double accuracy = (1 - errorRate) * 100; // accuracy
+        out.write(String.format("Accuracy: %.3f%%%n", accuracy));
+
+        testing.close();
+        out.close();
+    }
+
+    /**
+     * Sets up the options
+     */
+    public static void setUpOps() {
+        // could use JCommander (http://jcommander.org/)
+        ops.put("-h", "header present in data");
+        ops.put("-t", "display execution time");
+        ops.put("-b", "Bernoulli model (term present or not) instead of multinomial (term counts)");
+        ops.put("-a", "additive smoothing (default 1)");
+    }
+
+    /**
+     * Parses the options you supply
+     * @param args - the list of arguments passed in by the user
+     */
+    public static void parseOps(String[] args) {
+        for (int i = 0; i < args.length - 3; i++) {
+            if (args[i].charAt(0) == '-') {
+                String op = args[i];
+                if (!ops.containsKey(op)) {
+                    System.out.printf("%s it not a valid option. Skipped.%n", op);
+                    continue;
+                }
+
+                switch (op) {
+                    case "-h":  // header row in training and testing sets
+                        header = true;
+                        continue;
+                    case "-t": // time
+                        timeThis = true;
+                        continue;
+                    case "-b": // Bernoulli
+                        bernoulli = true;
+                        continue;
+                    case "-a": // smoothing
+                        i++;
+                        alpha = Double.parseDouble(args[i]);
+                        break;
+                }
+            }
+        }
+    }
+
+    /**
+     * If a fatal error occurs, call this to kill the program
+     * @param msg - the message to display before dying
+     */
+    public static void die(String msg) {
+        System.err.println(msg);
+        System.exit(1);
+    }
+
+    public static void main(String[] args) throws IOException {
+        setUpOps();
+
+        if (args.length < 3) {
+            System.out.println("USAGE: java SparseNaiveBayes [OPTION] TrainingSet TestingSet OutputFile");
+            System.out.println("\tRecords are in LibSVM format: label index:value index:value ...");
+            if (ops.size() > 0) {
+                System.out.println("OPTIONS:");
+                for (Map.Entry<String, String> entry : ops.entrySet()){
+                    System.out.println("\t" + entry.getKey() + " - " + entry.getValue());
+                }
+            }
+
+            System.exit(1);
+        }
+
+        parseOps(args);
+
+        int first = args.length-3;
+        trainingSet = new File(args[first]);
+        testingSet = new File(args[first+1]);
+        File out = new File(args[first+2]);
+
+        // start timing here
+        long startTime = System.nanoTime();
+        train();
+        test(out);
+        long stopTime = System.nanoTime();
+
+        if (timeThis) {
+            long duration = (stopTime - startTime)/1000000; // in ms
+            double simpler = 0;
+            String unit = "hr";
+            if (duration > 1000*60*60) {
+                simpler = duration/(1000*60*60.); // hours
+            }
+
+            else if (duration > 1000*60) {
+                simpler = duration/(1000*60.); // minutes
+                unit = "min";
+            }
+
+            else if (duration > 1000) {
+                simpler = duration/(1000.); // seconds
+                unit = "s";
+            }
+
+            System.out.printf("Execution time: %d ms%n", duration);
+            if (simpler != 0) System.out.printf("\t%.5f %s%n", simpler, unit);
+        }
+    }
+}